@@ -3,14 +3,39 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.text.SimpleDateFormat;
 import java.util.*;  // This imports java.util.List
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.*;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.distribution.ZipfDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
 
 // GLOBAL CONSTANTS
 class Constants {
@@ -19,7 +44,9 @@ class Constants {
 }
 
 // USER MODEL
-class User {
+class User implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private int id;
     private String username;
     private String hashedPassword;
@@ -36,7 +63,9 @@ class User {
 }
 
 // HABIT MODEL
-class Habit {
+class Habit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private int habitId;
     private int userId;
     private String name;
@@ -44,6 +73,7 @@ class Habit {
     private LocalDate createdDate;
     private int streak;
     private LocalDate lastCompleted;
+    private long completionHistory; // bit i set = completed on lastCompleted - i
 
     public Habit(int habitId, int userId, String name, String description) {
         this.habitId = habitId;
@@ -54,6 +84,18 @@ class Habit {
         this.streak = 0;
         this.lastCompleted = null;
     }
+    
+    // Restore a stored habit
+    public Habit(int habitId, int userId, String name, String description,
+                 LocalDate createdDate, int streak, LocalDate lastCompleted) {
+        this.habitId = habitId;
+        this.userId = userId;
+        this.name = name;
+        this.description = description;
+        this.createdDate = createdDate;
+        this.streak = streak;
+        this.lastCompleted = lastCompleted;
+    }
 
     public int getHabitId() { return habitId; }
     public int getUserId() { return userId; }
@@ -62,9 +104,18 @@ class Habit {
     public LocalDate getCreatedDate() { return createdDate; }
     public int getStreak() { return streak; }
     public LocalDate getLastCompleted() { return lastCompleted; }
+    public long getCompletionHistory() { return completionHistory; }
 
     public void setStreak(int streak) { this.streak = streak; }
     public void setLastCompleted(LocalDate date) { this.lastCompleted = date; }
+    public void setCompletionHistory(long history) { this.completionHistory = history; }
+
+    // Detached copy, safe to read outside DatabaseManager's lock
+    public Habit copy() {
+        Habit copy = new Habit(habitId, userId, name, description, createdDate, streak, lastCompleted);
+        copy.completionHistory = completionHistory;
+        return copy;
+    }
 }
 
 // PASSWORD HASHING
@@ -85,196 +136,1707 @@ class PasswordUtil {
     }
 }
 
+// STORAGE ENGINE (Persistence backend behind DatabaseManager)
+interface StorageEngine {
+    Map<String, User> loadUsers();
+    Map<Integer, Habit> loadHabits();
+    java.util.List<Habit> loadUserHabits(int userId);
+    
+    void saveUser(User user);
+    void saveHabit(Habit habit);
+    void saveHabits(java.util.List<Habit> habits);
+    void deleteHabit(int habitId);
+    
+    // Push any buffered writes to the backend
+    void flush();
+    void close();
+}
+
 // FILE STORAGE (Using text files instead of Excel)
-class FileStorage {
+class FileStorage implements StorageEngine {
     private static final String USERS_FILE = "users.dat";
     private static final String HABITS_FILE = "habits.dat";
     
-    // Save users to file
-    public static void saveUsers(Map<String, User> users) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(USERS_FILE))) {
-            oos.writeObject(users);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private final File usersFile;
+    private final File habitsFile;
+    private Map<String, User> users = new HashMap<String, User>();
+    private Map<Integer, Habit> habits = new HashMap<Integer, Habit>();
+    
+    public FileStorage() {
+        this(new File("."));
+    }
+    
+    public FileStorage(File directory) {
+        directory.mkdirs();
+        this.usersFile = new File(directory, USERS_FILE);
+        this.habitsFile = new File(directory, HABITS_FILE);
+    }
+    
+    // Save users to file
+    private void writeUsers() {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(usersFile))) {
+            oos.writeObject(users);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Load users from file
+    @SuppressWarnings("unchecked")
+    public Map<String, User> loadUsers() {
+        users = new HashMap<String, User>();
+        if (!usersFile.exists()) return new HashMap<String, User>(users);
+        
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(usersFile))) {
+            users = (Map<String, User>) ois.readObject();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new HashMap<String, User>(users);
+    }
+    
+    // Save habits to file
+    private void writeHabits() {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(habitsFile))) {
+            oos.writeObject(habits);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Load habits from file
+    @SuppressWarnings("unchecked")
+    public Map<Integer, Habit> loadHabits() {
+        habits = new HashMap<Integer, Habit>();
+        if (!habitsFile.exists()) return new HashMap<Integer, Habit>(habits);
+        
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(habitsFile))) {
+            habits = (Map<Integer, Habit>) ois.readObject();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new HashMap<Integer, Habit>(habits);
+    }
+    
+    // No index on disk: scan the loaded snapshot
+    public java.util.List<Habit> loadUserHabits(int userId) {
+        java.util.List<Habit> userHabits = new ArrayList<Habit>();
+        for (Habit habit : habits.values()) {
+            if (habit.getUserId() == userId) {
+                userHabits.add(habit);
+            }
+        }
+        return userHabits;
+    }
+    
+    // Every change rewrites the whole file
+    public void saveUser(User user) {
+        users.put(user.getUsername(), user);
+        writeUsers();
+    }
+    
+    public void saveHabit(Habit habit) {
+        habits.put(habit.getHabitId(), habit);
+        writeHabits();
+    }
+    
+    public void saveHabits(java.util.List<Habit> changed) {
+        if (changed.isEmpty()) return;
+        for (Habit habit : changed) {
+            habits.put(habit.getHabitId(), habit);
+        }
+        writeHabits();
+    }
+    
+    public void deleteHabit(int habitId) {
+        if (habits.remove(habitId) != null) {
+            writeHabits();
+        }
+    }
+    
+    public void flush() {}
+    public void close() {}
+}
+
+// CONNECTION POOL (Fixed number of JDBC connections)
+class ConnectionPool {
+    private final BlockingQueue<Connection> idle;
+    private final java.util.List<Connection> all = new ArrayList<Connection>();
+    
+    public ConnectionPool(String url, int size) throws SQLException {
+        idle = new ArrayBlockingQueue<Connection>(size);
+        for (int i = 0; i < size; i++) {
+            Connection connection = DriverManager.getConnection(url);
+            all.add(connection);
+            idle.add(connection);
+        }
+    }
+    
+    public Connection borrow() {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a connection", e);
+        }
+    }
+    
+    public void release(Connection connection) {
+        idle.offer(connection);
+    }
+    
+    public void close() {
+        for (Connection connection : all) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
+
+// JDBC STORAGE (Embedded H2 / SQLite, indexed on user_id)
+class JdbcStorage implements StorageEngine {
+    private static final int BATCH_SIZE = 256;
+    private static final long FLUSH_INTERVAL_MS = 200;
+    
+    private final ConnectionPool pool;
+    private final String upsert;
+    
+    // Pending writes, coalesced per key so a batch never holds stale rows.
+    // Habits are queued as copies taken at save time, since the live objects
+    // keep changing while the flusher thread writes them out.
+    private final Map<Integer, User> pendingUsers = new LinkedHashMap<Integer, User>();
+    private final Map<Integer, Habit> pendingHabits = new LinkedHashMap<Integer, Habit>();
+    private final Set<Integer> pendingDeletes = new LinkedHashSet<Integer>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+    
+    public JdbcStorage(String url, int poolSize) {
+        // SQLite spells upsert differently from H2
+        upsert = url.startsWith("jdbc:sqlite:") ? "INSERT OR REPLACE INTO" : "MERGE INTO";
+        try {
+            pool = new ConnectionPool(url, poolSize);
+            createSchema();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open storage at " + url, e);
+        }
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "habithero-jdbc-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    private void createSchema() throws SQLException {
+        Connection connection = pool.borrow();
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS users ("
+                + "user_id INTEGER PRIMARY KEY, username VARCHAR(255) NOT NULL UNIQUE, "
+                + "hashed_password VARCHAR(64) NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS habits ("
+                + "habit_id INTEGER PRIMARY KEY, user_id INTEGER NOT NULL, name VARCHAR(255) NOT NULL, "
+                + "description VARCHAR(1024), created_date VARCHAR(10), streak INTEGER NOT NULL, "
+                + "last_completed VARCHAR(10), completion_history BIGINT NOT NULL DEFAULT 0)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_habits_user ON habits(user_id)");
+            
+            // Tables created before completion_history existed
+            if (!hasColumn(connection, "habits", "completion_history")) {
+                st.execute("ALTER TABLE habits ADD COLUMN completion_history BIGINT NOT NULL DEFAULT 0");
+            }
+        } finally {
+            pool.release(connection);
+        }
+    }
+    
+    // H2 stores unquoted names in upper case, SQLite as written
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        for (String[] names : new String[][] {{table, column}, {table.toUpperCase(), column.toUpperCase()}}) {
+            try (ResultSet rs = meta.getColumns(null, null, names[0], names[1])) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+    
+    public Map<String, User> loadUsers() {
+        flush();
+        Map<String, User> users = new HashMap<String, User>();
+        Connection connection = pool.borrow();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT user_id, username, hashed_password FROM users");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                User user = new User(rs.getInt(1), rs.getString(2), rs.getString(3));
+                users.put(user.getUsername(), user);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.release(connection);
+        }
+        return users;
+    }
+    
+    public Map<Integer, Habit> loadHabits() {
+        flush();
+        Map<Integer, Habit> habits = new HashMap<Integer, Habit>();
+        Connection connection = pool.borrow();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT habit_id, user_id, name, description, created_date, streak, last_completed, completion_history FROM habits");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Habit habit = readHabit(rs);
+                habits.put(habit.getHabitId(), habit);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.release(connection);
+        }
+        return habits;
+    }
+    
+    // Served by idx_habits_user
+    public java.util.List<Habit> loadUserHabits(int userId) {
+        flush();
+        java.util.List<Habit> userHabits = new ArrayList<Habit>();
+        Connection connection = pool.borrow();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT habit_id, user_id, name, description, created_date, streak, last_completed, completion_history "
+                + "FROM habits WHERE user_id = ? ORDER BY habit_id")) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    userHabits.add(readHabit(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.release(connection);
+        }
+        return userHabits;
+    }
+    
+    private static Habit readHabit(ResultSet rs) throws SQLException {
+        String created = rs.getString(5);
+        String last = rs.getString(7);
+        Habit habit = new Habit(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getString(4),
+            created == null ? null : LocalDate.parse(created), rs.getInt(6),
+            last == null ? null : LocalDate.parse(last));
+        habit.setCompletionHistory(rs.getLong(8));
+        return habit;
+    }
+    
+    public void saveUser(User user) {
+        boolean full;
+        synchronized (this) {
+            pendingUsers.put(user.getId(), user);
+            full = pendingCount() >= BATCH_SIZE;
+        }
+        if (full) flush();
+    }
+    
+    public void saveHabit(Habit habit) {
+        boolean full;
+        synchronized (this) {
+            pendingDeletes.remove(habit.getHabitId());
+            pendingHabits.put(habit.getHabitId(), habit.copy());
+            full = pendingCount() >= BATCH_SIZE;
+        }
+        if (full) flush();
+    }
+    
+    public void saveHabits(java.util.List<Habit> habits) {
+        boolean full;
+        synchronized (this) {
+            for (Habit habit : habits) {
+                pendingDeletes.remove(habit.getHabitId());
+                pendingHabits.put(habit.getHabitId(), habit.copy());
+            }
+            full = pendingCount() >= BATCH_SIZE;
+        }
+        if (full) flush();
+    }
+    
+    public void deleteHabit(int habitId) {
+        boolean full;
+        synchronized (this) {
+            pendingHabits.remove(habitId);
+            pendingDeletes.add(habitId);
+            full = pendingCount() >= BATCH_SIZE;
+        }
+        if (full) flush();
+    }
+    
+    private int pendingCount() {
+        return pendingUsers.size() + pendingHabits.size() + pendingDeletes.size();
+    }
+    
+    // Write all pending changes in one transaction using batched statements.
+    // Flushes run one at a time so an older batch can never commit after a
+    // newer one; a failed batch goes back into the queue.
+    public void flush() {
+        synchronized (flushLock) {
+            java.util.List<User> userBatch;
+            java.util.List<Habit> habitBatch;
+            java.util.List<Integer> deleteBatch;
+            synchronized (this) {
+                if (pendingCount() == 0) return;
+                userBatch = new ArrayList<User>(pendingUsers.values());
+                habitBatch = new ArrayList<Habit>(pendingHabits.values());
+                deleteBatch = new ArrayList<Integer>(pendingDeletes);
+                pendingUsers.clear();
+                pendingHabits.clear();
+                pendingDeletes.clear();
+            }
+            
+            if (!writeBatch(userBatch, habitBatch, deleteBatch)) {
+                requeue(userBatch, habitBatch, deleteBatch);
+            }
+        }
+    }
+    
+    // Put a failed batch back, unless a newer write for the same key is pending
+    private synchronized void requeue(java.util.List<User> userBatch, java.util.List<Habit> habitBatch,
+                                      java.util.List<Integer> deleteBatch) {
+        for (User user : userBatch) {
+            if (!pendingUsers.containsKey(user.getId())) {
+                pendingUsers.put(user.getId(), user);
+            }
+        }
+        for (Habit habit : habitBatch) {
+            int habitId = habit.getHabitId();
+            if (!pendingHabits.containsKey(habitId) && !pendingDeletes.contains(habitId)) {
+                pendingHabits.put(habitId, habit);
+            }
+        }
+        for (int habitId : deleteBatch) {
+            if (!pendingHabits.containsKey(habitId)) {
+                pendingDeletes.add(habitId);
+            }
+        }
+    }
+    
+    private boolean writeBatch(java.util.List<User> userBatch, java.util.List<Habit> habitBatch,
+                               java.util.List<Integer> deleteBatch) {
+        Connection connection = pool.borrow();
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    upsert + " users (user_id, username, hashed_password) VALUES (?, ?, ?)")) {
+                for (User user : userBatch) {
+                    ps.setInt(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setString(3, user.getHashedPassword());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    upsert + " habits (habit_id, user_id, name, description, created_date, streak, last_completed, "
+                    + "completion_history) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (Habit habit : habitBatch) {
+                    ps.setInt(1, habit.getHabitId());
+                    ps.setInt(2, habit.getUserId());
+                    ps.setString(3, habit.getName());
+                    ps.setString(4, habit.getDescription());
+                    ps.setString(5, habit.getCreatedDate() == null ? null : habit.getCreatedDate().toString());
+                    ps.setInt(6, habit.getStreak());
+                    ps.setString(7, habit.getLastCompleted() == null ? null : habit.getLastCompleted().toString());
+                    ps.setLong(8, habit.getCompletionHistory());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM habits WHERE habit_id = ?")) {
+                for (int habitId : deleteBatch) {
+                    ps.setInt(1, habitId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+            }
+            return false;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+            }
+            pool.release(connection);
+        }
+    }
+    
+    public void close() {
+        flusher.shutdown();
+        flush();
+        pool.close();
+    }
+}
+
+// LEADERBOARD (Indexable skip list, highest score first)
+class Leaderboard {
+    private static final int MAX_LEVEL = 32;
+    
+    private static class Node {
+        int id;
+        int score;
+        Node[] next;
+        int[] span;
+        
+        Node(int id, int score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+    
+    private final Map<Integer, Integer> scores = new HashMap<Integer, Integer>();
+    private final Random random = new Random(0x5EED);
+    private Node head;
+    private int level;
+    
+    public Leaderboard() {
+        clear();
+    }
+    
+    // Remove every entry
+    public void clear() {
+        head = new Node(-1, 0, MAX_LEVEL);
+        level = 1;
+        scores.clear();
+    }
+    
+    public int size() { return scores.size(); }
+    public boolean contains(int id) { return scores.containsKey(id); }
+    
+    public int getScore(int id) {
+        Integer score = scores.get(id);
+        return score == null ? 0 : score;
+    }
+    
+    // Insert or move an entry, O(log n)
+    public void update(int id, int score) {
+        Integer old = scores.get(id);
+        if (old != null) {
+            if (old == score) return;
+            scores.remove(id);
+            unlink(id, old);
+        }
+        link(id, score);
+        scores.put(id, score);
+    }
+    
+    // Remove an entry, O(log n)
+    public boolean remove(int id) {
+        Integer old = scores.remove(id);
+        if (old == null) return false;
+        unlink(id, old);
+        return true;
+    }
+    
+    // 1-based rank, or 0 if the id is not ranked, O(log n)
+    public int rank(int id) {
+        Integer score = scores.get(id);
+        if (score == null) return 0;
+        
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, id) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.id == id) return rank;
+        }
+        return 0;
+    }
+    
+    // Ids of the first k entries in rank order, O(k)
+    public java.util.List<Integer> top(int k) {
+        java.util.List<Integer> ids = new ArrayList<Integer>();
+        Node x = head.next[0];
+        while (x != null && ids.size() < k) {
+            ids.add(x.id);
+            x = x.next[0];
+        }
+        return ids;
+    }
+    
+    // Negative if node ranks before (score, id): higher score first, then lower id
+    private static int compare(Node node, int score, int id) {
+        if (node.score != score) return node.score > score ? -1 : 1;
+        return Integer.compare(node.id, id);
+    }
+    
+    private int randomLevel() {
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && random.nextInt(4) == 0) lvl++;
+        return lvl;
+    }
+    
+    private void link(int id, int score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        int size = scores.size();
+        
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = (i == level - 1) ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i], score, id) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        int lvl = randomLevel();
+        if (lvl > level) {
+            for (int i = level; i < lvl; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = lvl;
+        }
+        
+        Node node = new Node(id, score, lvl);
+        for (int i = 0; i < lvl; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = lvl; i < level; i++) {
+            update[i].span[i]++;
+        }
+    }
+    
+    private void unlink(int id, int score) {
+        Node[] update = new Node[MAX_LEVEL];
+        
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], score, id) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        Node target = x.next[0];
+        if (target == null || target.id != id) return;
+        
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+    }
+}
+
+// HABIT ADHERENCE (Last 64 days of completions as a bitmask)
+class HabitAdherence {
+    private static final int WINDOW = 64;
+    static final int FORECAST_DAYS = 7;
+    
+    private final LocalDate createdDate;
+    private LocalDate anchor;   // newest recorded completion day
+    private long history;       // bit i set = completed on anchor - i
+    
+    // Restore the history stored on the habit. Habits saved before it was
+    // stored fall back to their streak: a streak of n ending on lastCompleted
+    // means the n days up to and including it were completed
+    public HabitAdherence(Habit habit) {
+        this.createdDate = habit.getCreatedDate();
+        LocalDate last = habit.getLastCompleted();
+        if (last != null) {
+            anchor = last;
+            history = habit.getCompletionHistory();
+            if (history == 0) {
+                int days = Math.max(1, Math.min(habit.getStreak(), WINDOW));
+                history = days == WINDOW ? -1L : (1L << days) - 1;
+            }
+        }
+    }
+    
+    public void record(LocalDate day) {
+        if (anchor == null) {
+            anchor = day;
+            history = 1L;
+            return;
+        }
+        long shift = day.toEpochDay() - anchor.toEpochDay();
+        if (shift > 0) {
+            history = shift >= WINDOW ? 0 : history << shift;
+            history |= 1L;
+            anchor = day;
+        } else if (-shift < WINDOW) {
+            history |= 1L << -shift;
+        }
+    }
+    
+    // Completions as seen from the given day, bit 0 = that day
+    public long maskAt(LocalDate day) {
+        if (anchor == null) return 0;
+        long shift = day.toEpochDay() - anchor.toEpochDay();
+        if (shift >= WINDOW) return 0;
+        return shift >= 0 ? history << shift : history >>> -shift;
+    }
+    
+    // Number of days the habit existed within a window ending on the given day
+    private int observedDays(LocalDate day, int window) {
+        if (createdDate == null) return window;
+        long age = day.toEpochDay() - createdDate.toEpochDay() + 1;
+        return (int) Math.max(0, Math.min(window, age));
+    }
+    
+    // Today only counts once it has been completed, so an unfinished day
+    // does not drag the numbers down
+    public AdherenceReport report(LocalDate today) {
+        LocalDate end = (maskAt(today) & 1L) != 0 ? today : today.minusDays(1);
+        long mask = maskAt(end);
+        
+        int days7 = observedDays(end, 7);
+        int days30 = observedDays(end, 30);
+        int done30 = Long.bitCount(mask & ((1L << 30) - 1));
+        double rate7 = days7 == 0 ? 0 : Long.bitCount(mask & ((1L << 7) - 1)) / (double) days7;
+        double rate30 = days30 == 0 ? 0 : done30 / (double) days30;
+        
+        // Least squares slope of the daily 0/1 series, in rate per day
+        double slope = 0;
+        if (days30 >= 3) {
+            SimpleRegression regression = new SimpleRegression();
+            for (int i = 0; i < days30; i++) {
+                regression.addData(-i, (mask >>> i) & 1L);
+            }
+            slope = regression.getSlope();
+        }
+        
+        // Chance of completing each of the next FORECAST_DAYS days: the
+        // Beta-binomial posterior predictive of FORECAST_DAYS successes in a
+        // row, with a uniform Beta(1, 1) prior updated by the last 30 days.
+        // P = prod (a + i) / (a + b + i) for i < FORECAST_DAYS
+        double a = done30 + 1;
+        double b = days30 - done30 + 1;
+        double keepStreak = 1;
+        for (int i = 0; i < FORECAST_DAYS; i++) {
+            keepStreak *= (a + i) / (a + b + i);
+        }
+        
+        return new AdherenceReport(rate7, rate30, slope * 7, keepStreak);
+    }
+}
+
+// ADHERENCE REPORT (Rolling completion metrics, rates in 0..1)
+class AdherenceReport {
+    private final double rate7;
+    private final double rate30;
+    private final double trendPerWeek;
+    private final double streakSurvival;
+    
+    public AdherenceReport(double rate7, double rate30, double trendPerWeek, double streakSurvival) {
+        this.rate7 = rate7;
+        this.rate30 = rate30;
+        this.trendPerWeek = trendPerWeek;
+        this.streakSurvival = streakSurvival;
+    }
+    
+    public double getRate7() { return rate7; }
+    public double getRate30() { return rate30; }
+    public double getTrendPerWeek() { return trendPerWeek; }
+    // Probability of keeping the streak through the next FORECAST_DAYS days
+    public double getStreakSurvival() { return streakSurvival; }
+    
+    // Mean over a user's habits; an empty list scores zero
+    public static AdherenceReport average(java.util.List<AdherenceReport> reports) {
+        if (reports.isEmpty()) return new AdherenceReport(0, 0, 0, 0);
+        double r7 = 0, r30 = 0, trend = 0, keep = 0;
+        for (AdherenceReport r : reports) {
+            r7 += r.rate7;
+            r30 += r.rate30;
+            trend += r.trendPerWeek;
+            keep += r.streakSurvival;
+        }
+        int n = reports.size();
+        return new AdherenceReport(r7 / n, r30 / n, trend / n, keep / n);
+    }
+}
+
+// ADHERENCE TRACKER (Per-habit history, per-user report cache)
+class AdherenceTracker {
+    private final Map<Integer, HabitAdherence> habits = new HashMap<Integer, HabitAdherence>();
+    private final Map<Integer, AdherenceReport> userCache = new ConcurrentHashMap<Integer, AdherenceReport>();
+    private LocalDate cacheDay;
+    
+    public void track(Habit habit) {
+        habits.put(habit.getHabitId(), new HabitAdherence(habit));
+        userCache.remove(habit.getUserId());
+    }
+    
+    public void recordCompletion(Habit habit, LocalDate day) {
+        HabitAdherence adherence = habits.get(habit.getHabitId());
+        if (adherence == null) {
+            track(habit);
+            adherence = habits.get(habit.getHabitId());
+        }
+        adherence.record(day);
+        habit.setCompletionHistory(adherence.maskAt(habit.getLastCompleted()));
+        userCache.remove(habit.getUserId());
+    }
+    
+    public void forget(Habit habit) {
+        habits.remove(habit.getHabitId());
+        userCache.remove(habit.getUserId());
+    }
+    
+    public AdherenceReport habitReport(Habit habit, LocalDate today) {
+        HabitAdherence adherence = habits.get(habit.getHabitId());
+        return adherence == null ? new AdherenceReport(0, 0, 0, 0) : adherence.report(today);
+    }
+    
+    public AdherenceReport userReport(int userId, java.util.List<Habit> userHabits, LocalDate today) {
+        if (!today.equals(cacheDay)) {
+            userCache.clear();
+            cacheDay = today;
+        }
+        AdherenceReport cached = userCache.get(userId);
+        if (cached != null) return cached;
+        
+        AdherenceReport report = score(userHabits, today);
+        userCache.put(userId, report);
+        return report;
+    }
+    
+    // Score every user on the common fork-join pool; the tracker must not
+    // be mutated while this runs
+    public Map<Integer, AdherenceReport> scoreAll(Map<Integer, java.util.List<Habit>> habitsByUser, LocalDate today) {
+        if (!today.equals(cacheDay)) {
+            userCache.clear();
+            cacheDay = today;
+        }
+        Map<Integer, AdherenceReport> scores = new ConcurrentHashMap<Integer, AdherenceReport>();
+        habitsByUser.entrySet().parallelStream().forEach(e -> {
+            AdherenceReport report = score(e.getValue(), today);
+            scores.put(e.getKey(), report);
+            userCache.put(e.getKey(), report);
+        });
+        return new TreeMap<Integer, AdherenceReport>(scores);
+    }
+    
+    private AdherenceReport score(java.util.List<Habit> userHabits, LocalDate today) {
+        java.util.List<AdherenceReport> reports = new ArrayList<AdherenceReport>();
+        for (Habit habit : userHabits) {
+            reports.add(habitReport(habit, today));
+        }
+        return AdherenceReport.average(reports);
+    }
+}
+
+// NIGHTLY ADHERENCE REPORT (java NightlyAdherenceReport > adherence.csv)
+class NightlyAdherenceReport {
+    public static void main(String[] args) {
+        DatabaseManager db = DatabaseManager.getInstance();
+        Map<Integer, AdherenceReport> scores = db.scoreAllUsers();
+        
+        System.out.println("user_id,rate_7d,rate_30d,trend_per_week,streak_survival_7d");
+        for (Map.Entry<Integer, AdherenceReport> e : scores.entrySet()) {
+            AdherenceReport r = e.getValue();
+            System.out.printf(Locale.ROOT, "%d,%.4f,%.4f,%.4f,%.4f%n", e.getKey(),
+                r.getRate7(), r.getRate30(), r.getTrendPerWeek(), r.getStreakSurvival());
+        }
+    }
+}
+
+// DATABASE MANAGER
+class DatabaseManager {
+    private Map<String, User> users;
+    private Map<Integer, Habit> habits;
+    private Map<Integer, User> usersById = new HashMap<Integer, User>();
+    private Map<Integer, java.util.List<Habit>> habitsByUser = new HashMap<Integer, java.util.List<Habit>>();
+    private int nextUserId = 1;
+    private int nextHabitId = 1;
+    
+    // Leaderboards: users by total streak, habits by streak per habit name
+    private Leaderboard userLeaderboard = new Leaderboard();
+    private Map<String, Leaderboard> habitLeaderboards = new HashMap<String, Leaderboard>();
+    private LocalDate lastRollover;
+    
+    // Habits with a live streak, grouped by their last completion day, so the
+    // daily rollover only visits the groups that just expired
+    private TreeMap<LocalDate, Set<Integer>> liveStreaksByDay = new TreeMap<LocalDate, Set<Integer>>();
+    
+    private AdherenceTracker adherence = new AdherenceTracker();
+    
+    private final StorageEngine storage;
+    private volatile Clock clock = Clock.systemDefaultZone();
+    
+    // Ordered mutations, streamed to replicas
+    private ChangeLog changeLog;  // created by startReplication
+    
+    private static DatabaseManager instance;
+    
+    DatabaseManager(StorageEngine storage) {
+        this.storage = storage;
+        loadData();
+    }
+    
+    public static synchronized DatabaseManager getInstance() {
+        if (instance == null) {
+            StorageEngine storage = createStorageEngine();
+            instance = new DatabaseManager(storage);
+            Runtime.getRuntime().addShutdownHook(new Thread(storage::close));
+            
+            // -Dhabithero.replication.port=N serves the change log to followers
+            Integer port = Integer.getInteger("habithero.replication.port");
+            if (port != null) {
+                try {
+                    instance.startReplication(port);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    // -Dhabithero.storage=file (default) or a JDBC URL such as
+    // jdbc:h2:./HabitHeroData/habithero or jdbc:sqlite:HabitHeroData/habithero.db
+    static StorageEngine createStorageEngine() {
+        String storage = System.getProperty("habithero.storage", "file");
+        if (storage.startsWith("jdbc:")) {
+            return new JdbcStorage(storage, Integer.getInteger("habithero.storage.pool", 4));
+        }
+        return new FileStorage();
+    }
+    
+    public StorageEngine getStorage() {
+        return storage;
+    }
+    
+    public synchronized ChangeLog getChangeLog() {
+        return changeLog;
+    }
+    
+    // Start recording mutations and serve them to followers on a loopback port.
+    // Without this no change log is kept at all.
+    public synchronized ReplicationServer startReplication(int port) throws IOException {
+        if (changeLog == null) {
+            changeLog = new ChangeLog(Integer.getInteger("habithero.replication.retain", 100000));
+        }
+        ReplicationServer server = new ReplicationServer(this, port);
+        server.start();
+        return server;
+    }
+    
+    private void logMutation(Mutation mutation) {
+        if (changeLog != null) changeLog.append(mutation);
+    }
+    
+    // Current state as mutations, consistent with the change log head;
+    // sent to followers that are new, behind the retained log or were
+    // following a previous run of this primary
+    public synchronized ReplicationSnapshot replicationSnapshot() {
+        java.util.List<Mutation> mutations = new ArrayList<Mutation>();
+        for (User user : new TreeMap<Integer, User>(usersById).values()) {
+            mutations.add(Mutation.register(user));
+        }
+        for (Habit habit : new TreeMap<Integer, Habit>(habits).values()) {
+            mutations.add(Mutation.add(habit));
+        }
+        return new ReplicationSnapshot(changeLog.head(), mutations);
+    }
+    
+    // Lets the load simulator replay days without waiting for them
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+    
+    // Load all data
+    private void loadData() {
+        users = storage.loadUsers();
+        habits = storage.loadHabits();
+        
+        // Find max IDs
+        for (User user : users.values()) {
+            if (user.getId() >= nextUserId) nextUserId = user.getId() + 1;
+        }
+        for (Habit habit : habits.values()) {
+            if (habit.getHabitId() >= nextHabitId) nextHabitId = habit.getHabitId() + 1;
+        }
+        
+        // Index habits by owner, in habit id order
+        for (Habit habit : new TreeMap<Integer, Habit>(habits).values()) {
+            userHabitList(habit.getUserId()).add(habit);
+            adherence.track(habit);
+        }
+        
+        rebuildLeaderboards();
+    }
+    
+    // Rebuild all leaderboards from the loaded maps
+    private void rebuildLeaderboards() {
+        usersById.clear();
+        userLeaderboard.clear();
+        habitLeaderboards.clear();
+        liveStreaksByDay.clear();
+        
+        for (User user : users.values()) {
+            usersById.put(user.getId(), user);
+            userLeaderboard.update(user.getId(), 0);
+        }
+        for (Habit habit : habits.values()) {
+            habitLeaderboard(habit.getName()).update(habit.getHabitId(), habit.getStreak());
+            trackLiveStreak(habit);
+            if (userLeaderboard.contains(habit.getUserId())) {
+                userLeaderboard.update(habit.getUserId(),
+                    userLeaderboard.getScore(habit.getUserId()) + habit.getStreak());
+            }
+        }
+    }
+    
+    private java.util.List<Habit> userHabitList(int userId) {
+        java.util.List<Habit> list = habitsByUser.get(userId);
+        if (list == null) {
+            list = new ArrayList<Habit>();
+            habitsByUser.put(userId, list);
+        }
+        return list;
+    }
+    
+    private static String leaderboardKey(String habitName) {
+        return habitName.trim().toLowerCase();
+    }
+    
+    private Leaderboard habitLeaderboard(String habitName) {
+        String key = leaderboardKey(habitName);
+        Leaderboard board = habitLeaderboards.get(key);
+        if (board == null) {
+            board = new Leaderboard();
+            habitLeaderboards.put(key, board);
+        }
+        return board;
+    }
+    
+    // Apply a streak change of one habit to both leaderboards
+    private void updateStreakRanking(Habit habit, int oldStreak) {
+        habitLeaderboard(habit.getName()).update(habit.getHabitId(), habit.getStreak());
+        int userId = habit.getUserId();
+        if (userLeaderboard.contains(userId)) {
+            userLeaderboard.update(userId, userLeaderboard.getScore(userId) + habit.getStreak() - oldStreak);
+        }
+    }
+    
+    // Reset streaks that were broken by a missed day, once per calendar day
+    private void rolloverStreaks() {
+        LocalDate today = LocalDate.now(clock);
+        if (today.equals(lastRollover)) return;
+        lastRollover = today;
+        
+        // Every group last completed before yesterday has just expired
+        SortedMap<LocalDate, Set<Integer>> expired = liveStreaksByDay.headMap(today.minusDays(1));
+        if (expired.isEmpty()) return;
+        
+        java.util.List<Habit> reset = new ArrayList<Habit>();
+        for (Set<Integer> group : expired.values()) {
+            for (int habitId : group) {
+                Habit habit = habits.get(habitId);
+                int oldStreak = habit.getStreak();
+                habit.setStreak(0);
+                updateStreakRanking(habit, oldStreak);
+                logMutation(Mutation.complete(habit));
+                reset.add(habit);
+            }
+        }
+        expired.clear();
+        storage.saveHabits(reset);
+    }
+    
+    private void trackLiveStreak(Habit habit) {
+        if (habit.getStreak() <= 0 || habit.getLastCompleted() == null) return;
+        Set<Integer> group = liveStreaksByDay.get(habit.getLastCompleted());
+        if (group == null) {
+            group = new HashSet<Integer>();
+            liveStreaksByDay.put(habit.getLastCompleted(), group);
+        }
+        group.add(habit.getHabitId());
+    }
+    
+    private void untrackLiveStreak(Habit habit) {
+        if (habit.getLastCompleted() == null) return;
+        Set<Integer> group = liveStreaksByDay.get(habit.getLastCompleted());
+        if (group != null && group.remove(habit.getHabitId()) && group.isEmpty()) {
+            liveStreaksByDay.remove(habit.getLastCompleted());
+        }
+    }
+    
+    // Register user
+    public synchronized boolean registerUser(String username, String password) {
+        if (users.containsKey(username)) {
+            return false;
+        }
+        
+        User user = new User(nextUserId++, username, PasswordUtil.hash(password));
+        users.put(username, user);
+        usersById.put(user.getId(), user);
+        userLeaderboard.update(user.getId(), 0);
+        storage.saveUser(user);
+        logMutation(Mutation.register(user));
+        return true;
+    }
+    
+    // Login user
+    public synchronized User loginUser(String username, String password) {
+        User user = users.get(username);
+        if (user != null && user.getHashedPassword().equals(PasswordUtil.hash(password))) {
+            return user;
+        }
+        return null;
+    }
+    
+    // Add habit
+    public synchronized Habit addHabit(int userId, String name, String description) {
+        Habit habit = new Habit(nextHabitId++, userId, name, description,
+            LocalDate.now(clock), 0, null);
+        habits.put(habit.getHabitId(), habit);
+        userHabitList(userId).add(habit);
+        adherence.track(habit);
+        habitLeaderboard(name).update(habit.getHabitId(), 0);
+        storage.saveHabit(habit);
+        logMutation(Mutation.add(habit));
+        return habit;
+    }
+    
+    // Get user habits
+    public synchronized java.util.List<Habit> getUserHabits(int userId) {
+        rolloverStreaks();
+        java.util.List<Habit> userHabits = habitsByUser.get(userId);
+        return userHabits == null ? new ArrayList<Habit>() : new ArrayList<Habit>(userHabits);
+    }
+    
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+    
+    // All users in id order
+    public synchronized java.util.List<User> getAllUsers() {
+        return new ArrayList<User>(new TreeMap<Integer, User>(usersById).values());
+    }
+    
+    // Complete habit
+    public synchronized boolean completeHabit(int habitId) {
+        Habit habit = habits.get(habitId);
+        if (habit == null) return false;
+        
+        LocalDate today = LocalDate.now(clock);
+        LocalDate last = habit.getLastCompleted();
+        
+        if (last != null && last.equals(today)) {
+            return false; // Already completed today
+        }
+        
+        // Update streak
+        untrackLiveStreak(habit);
+        int oldStreak = habit.getStreak();
+        if (last != null && last.plusDays(1).equals(today)) {
+            habit.setStreak(habit.getStreak() + 1);
+        } else {
+            habit.setStreak(1);
+        }
+        
+        habit.setLastCompleted(today);
+        trackLiveStreak(habit);
+        updateStreakRanking(habit, oldStreak);
+        adherence.recordCompletion(habit, today);
+        storage.saveHabit(habit);
+        logMutation(Mutation.complete(habit));
+        return true;
+    }
+    
+    // Delete habit
+    public synchronized boolean deleteHabit(int habitId) {
+        if (habits.containsKey(habitId)) {
+            Habit habit = habits.remove(habitId);
+            untrackLiveStreak(habit);
+            int userId = habit.getUserId();
+            userHabitList(userId).remove(habit);
+            adherence.forget(habit);
+            habitLeaderboard(habit.getName()).remove(habitId);
+            if (userLeaderboard.contains(userId)) {
+                userLeaderboard.update(userId, userLeaderboard.getScore(userId) - habit.getStreak());
+            }
+            storage.deleteHabit(habitId);
+            logMutation(Mutation.delete(habitId));
+            return true;
+        }
+        return false;
+    }
+    
+    // Get user stats
+    public synchronized Map<String, Integer> getUserStats(int userId) {
+        return computeStats(getUserHabits(userId), LocalDate.now(clock));
+    }
+    
+    // A streak survives until the end of the day after its last completion
+    static boolean isStreakBroken(Habit habit, LocalDate today) {
+        LocalDate last = habit.getLastCompleted();
+        return habit.getStreak() > 0 && (last == null || last.isBefore(today.minusDays(1)));
+    }
+    
+    // Shared with ReplicaDatabase, which applies the same broken-streak rule
+    // to its habits first, so followers report the same stats
+    static Map<String, Integer> computeStats(java.util.List<Habit> userHabits, LocalDate today) {
+        int totalStreak = 0;
+        int completedToday = 0;
+        int totalHabits = userHabits.size();
+        
+        for (Habit habit : userHabits) {
+            totalStreak += habit.getStreak();
+            if (habit.getLastCompleted() != null && habit.getLastCompleted().equals(today)) {
+                completedToday++;
+            }
+        }
+        
+        Map<String, Integer> stats = new HashMap<String, Integer>();
+        stats.put("totalHabits", totalHabits);
+        stats.put("totalStreak", totalStreak);
+        stats.put("completedToday", completedToday);
+        stats.put("successRate", totalHabits > 0 ? (completedToday * 100) / totalHabits : 0);
+        
+        return stats;
+    }
+    
+    // Rolling 7/30-day completion rates, trend and 7-day streak odds for one habit
+    public synchronized AdherenceReport getHabitAdherence(int habitId) {
+        Habit habit = habits.get(habitId);
+        if (habit == null) return null;
+        return adherence.habitReport(habit, LocalDate.now(clock));
+    }
+    
+    // Same metrics averaged over a user's habits, cached until they change
+    public synchronized AdherenceReport getUserAdherence(int userId) {
+        return adherence.userReport(userId, getUserHabits(userId), LocalDate.now(clock));
+    }
+    
+    // Batch mode for nightly reports: every user scored in parallel, by user id
+    public synchronized Map<Integer, AdherenceReport> scoreAllUsers() {
+        Map<Integer, java.util.List<Habit>> snapshot = new HashMap<Integer, java.util.List<Habit>>();
+        for (User user : usersById.values()) {
+            snapshot.put(user.getId(), getUserHabits(user.getId()));
+        }
+        return adherence.scoreAll(snapshot, LocalDate.now(clock));
+    }
+    
+    // Rank of a user by total streak (1 = best), 0 if unknown
+    public synchronized int getUserRank(int userId) {
+        rolloverStreaks();
+        return userLeaderboard.rank(userId);
+    }
+    
+    // Number of users on the global leaderboard
+    public synchronized int getRankedUserCount() {
+        return userLeaderboard.size();
+    }
+    
+    // Top k users by total streak
+    public synchronized java.util.List<User> getTopUsers(int k) {
+        rolloverStreaks();
+        java.util.List<User> top = new ArrayList<User>();
+        for (int userId : userLeaderboard.top(k)) {
+            top.add(usersById.get(userId));
+        }
+        return top;
+    }
+    
+    // Rank of a habit among habits with the same name, 0 if unknown
+    public synchronized int getHabitRank(int habitId) {
+        Habit habit = habits.get(habitId);
+        if (habit == null) return 0;
+        rolloverStreaks();
+        return habitLeaderboard(habit.getName()).rank(habitId);
+    }
+    
+    // Top k habits with the given name by streak
+    public synchronized java.util.List<Habit> getTopHabits(String habitName, int k) {
+        rolloverStreaks();
+        java.util.List<Habit> top = new ArrayList<Habit>();
+        Leaderboard board = habitLeaderboards.get(leaderboardKey(habitName));
+        if (board == null) return top;
+        for (int habitId : board.top(k)) {
+            top.add(habits.get(habitId));
+        }
+        return top;
+    }
+}
+
+// REPLICATION MUTATION (One ordered change, carrying resulting state)
+class Mutation {
+    enum Type { REGISTER, ADD, COMPLETE, DELETE }
+    
+    private static final long NO_DATE = Long.MIN_VALUE;
+    
+    final Type type;
+    long seq;
+    long timestamp;
+    final int id;
+    final int userId;
+    final String name;
+    final String text;
+    final LocalDate createdDate;
+    final int streak;
+    final LocalDate lastCompleted;
+    
+    private Mutation(Type type, int id, int userId, String name, String text,
+                     LocalDate createdDate, int streak, LocalDate lastCompleted) {
+        this.type = type;
+        this.id = id;
+        this.userId = userId;
+        this.name = name;
+        this.text = text;
+        this.createdDate = createdDate;
+        this.streak = streak;
+        this.lastCompleted = lastCompleted;
+    }
+    
+    static Mutation register(User user) {
+        return new Mutation(Type.REGISTER, user.getId(), user.getId(), user.getUsername(),
+            user.getHashedPassword(), null, 0, null);
+    }
+    
+    static Mutation add(Habit habit) {
+        return new Mutation(Type.ADD, habit.getHabitId(), habit.getUserId(), habit.getName(),
+            habit.getDescription(), habit.getCreatedDate(), habit.getStreak(), habit.getLastCompleted());
+    }
+    
+    // Also used for streak resets, since it carries the habit's new streak
+    static Mutation complete(Habit habit) {
+        return new Mutation(Type.COMPLETE, habit.getHabitId(), habit.getUserId(), null,
+            null, null, habit.getStreak(), habit.getLastCompleted());
+    }
+    
+    static Mutation delete(int habitId) {
+        return new Mutation(Type.DELETE, habitId, 0, null, null, null, 0, null);
+    }
+    
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(seq);
+        out.writeLong(timestamp);
+        out.writeByte(type.ordinal());
+        out.writeInt(id);
+        out.writeInt(userId);
+        writeString(out, name);
+        writeString(out, text);
+        out.writeLong(createdDate == null ? NO_DATE : createdDate.toEpochDay());
+        out.writeInt(streak);
+        out.writeLong(lastCompleted == null ? NO_DATE : lastCompleted.toEpochDay());
+    }
+    
+    static Mutation read(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        Type type = Type.values()[in.readByte()];
+        int id = in.readInt();
+        int userId = in.readInt();
+        String name = readString(in);
+        String text = readString(in);
+        long created = in.readLong();
+        int streak = in.readInt();
+        long last = in.readLong();
+        
+        Mutation m = new Mutation(type, id, userId, name, text,
+            created == NO_DATE ? null : LocalDate.ofEpochDay(created), streak,
+            last == NO_DATE ? null : LocalDate.ofEpochDay(last));
+        m.seq = seq;
+        m.timestamp = timestamp;
+        return m;
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
+
+// REPLICATION SNAPSHOT (Full primary state as of one change log seq)
+class ReplicationSnapshot {
+    final long seq;
+    final java.util.List<Mutation> mutations;
+    
+    ReplicationSnapshot(long seq, java.util.List<Mutation> mutations) {
+        this.seq = seq;
+        this.mutations = mutations;
+    }
+}
+
+// CHANGE LOG (Sequence-numbered mutations, seq 1 is the first entry)
+//
+// Each log has a random epoch, so followers can tell a restarted primary
+// from the one they were following. Only the newest entries are retained;
+// a follower that falls behind them is resynced from a snapshot.
+class ChangeLog {
+    private final long epoch = new Random().nextLong();
+    private final int retain;
+    private final java.util.List<Mutation> entries = new ArrayList<Mutation>();
+    private long base;  // seq of the last dropped entry
+    
+    public ChangeLog(int retain) {
+        this.retain = Math.max(1, retain);
+    }
+    
+    public long getEpoch() {
+        return epoch;
+    }
+    
+    public synchronized long append(Mutation mutation) {
+        mutation.seq = base + entries.size() + 1;
+        mutation.timestamp = System.currentTimeMillis();
+        entries.add(mutation);
+        
+        // Drop the oldest half once over the limit, so trimming stays amortized O(1)
+        if (entries.size() > retain) {
+            int drop = entries.size() - retain / 2;
+            entries.subList(0, drop).clear();
+            base += drop;
+        }
+        notifyAll();
+        return mutation.seq;
+    }
+    
+    // Sequence number of the newest entry, 0 when empty
+    public synchronized long head() {
+        return base + entries.size();
+    }
+    
+    // Entries after the given offset, waiting up to timeoutMs for at least one.
+    // Returns null when entries after the offset have already been dropped.
+    public synchronized java.util.List<Mutation> readAfter(long offset, int max, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (head() <= offset) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return new ArrayList<Mutation>();
+            wait(remaining);
+        }
+        if (offset < base) return null;
+        int from = (int) (offset - base);
+        int to = Math.min(entries.size(), from + max);
+        return new ArrayList<Mutation>(entries.subList(from, to));
+    }
+}
+
+// REPLICATION SERVER (Streams the change log to followers over a local socket)
+//
+// Protocol: the follower sends [long epoch][long last applied seq]. If the
+// epoch matches and the log still holds everything after that seq, the
+// primary streams from there; otherwise it first sends a snapshot frame
+// [byte SNAPSHOT][long epoch][long seq][int count][count mutations] and
+// streams after the snapshot's seq. Log frames are
+// [byte BATCH][int count][long head][count mutations]; an empty batch is a
+// heartbeat that still reports the head.
+class ReplicationServer {
+    static final byte BATCH = 1;
+    static final byte SNAPSHOT = 2;
+    
+    private static final int BATCH_SIZE = 512;
+    private static final long HEARTBEAT_MS = 1000;
+    
+    private final DatabaseManager db;
+    private final ChangeLog changeLog;
+    private final ServerSocket serverSocket;
+    
+    // Created by DatabaseManager.startReplication, which sets up the change log
+    ReplicationServer(DatabaseManager db, int port) throws IOException {
+        this.db = db;
+        this.changeLog = db.getChangeLog();
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "habithero-replication");
+        acceptor.setDaemon(true);
+        acceptor.start();
     }
     
-    // Load users from file
-    @SuppressWarnings("unchecked")
-    public static Map<String, User> loadUsers() {
-        File file = new File(USERS_FILE);
-        if (!file.exists()) return new HashMap<String, User>();
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(USERS_FILE))) {
-            return (Map<String, User>) ois.readObject();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new HashMap<String, User>();
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread follower = new Thread(() -> stream(socket), "habithero-replication-" + socket.getPort());
+                follower.setDaemon(true);
+                follower.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) e.printStackTrace();
+            }
         }
     }
     
-    // Save habits to file
-    public static void saveHabits(Map<Integer, Habit> habits) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(HABITS_FILE))) {
-            oos.writeObject(habits);
+    private void stream(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            long epoch = in.readLong();
+            long offset = in.readLong();
+            if (epoch != changeLog.getEpoch()) {
+                offset = sendSnapshot(out);
+            }
+            while (true) {
+                java.util.List<Mutation> batch = changeLog.readAfter(offset, BATCH_SIZE, HEARTBEAT_MS);
+                if (batch == null) {
+                    // Follower fell behind the retained log
+                    offset = sendSnapshot(out);
+                    continue;
+                }
+                out.writeByte(BATCH);
+                out.writeInt(batch.size());
+                out.writeLong(changeLog.head());
+                for (Mutation m : batch) {
+                    m.write(out);
+                }
+                out.flush();
+                offset += batch.size();
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            // Follower disconnected; it resumes from its own offset
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
-    // Load habits from file
-    @SuppressWarnings("unchecked")
-    public static Map<Integer, Habit> loadHabits() {
-        File file = new File(HABITS_FILE);
-        if (!file.exists()) return new HashMap<Integer, Habit>();
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(HABITS_FILE))) {
-            return (Map<Integer, Habit>) ois.readObject();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new HashMap<Integer, Habit>();
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        ReplicationSnapshot snapshot = db.replicationSnapshot();
+        out.writeByte(SNAPSHOT);
+        out.writeLong(changeLog.getEpoch());
+        out.writeLong(snapshot.seq);
+        out.writeInt(snapshot.mutations.size());
+        for (Mutation m : snapshot.mutations) {
+            m.write(out);
         }
+        out.flush();
+        return snapshot.seq;
+    }
+    
+    // java ReplicationServer <port>: headless primary over the configured
+    // storage, for running followers in other JVMs without the Swing app
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        DatabaseManager db = DatabaseManager.getInstance();
+        ReplicationServer server = db.startReplication(port);
+        System.out.println("Serving the change log to followers on port " + server.getPort());
+        Thread.sleep(Long.MAX_VALUE);
     }
 }
 
-// DATABASE MANAGER
-class DatabaseManager {
-    private Map<String, User> users;
-    private Map<Integer, Habit> habits;
-    private int nextUserId = 1;
-    private int nextHabitId = 1;
+// REPLICA DATABASE (Read-only follower fed by a ReplicationServer)
+class ReplicaDatabase {
+    private static final long RETRY_MS = 1000;
     
-    private static DatabaseManager instance;
+    private final String host;
+    private final int port;
+    private final Map<Integer, User> users = new HashMap<Integer, User>();
+    private final Map<Integer, Habit> habits = new HashMap<Integer, Habit>();
+    private final Map<Integer, java.util.List<Habit>> habitsByUser = new HashMap<Integer, java.util.List<Habit>>();
+    private long epoch;  // change log epoch the applied state belongs to
+    private long appliedSeq;
+    private long appliedTimestamp;
+    private long primaryHead;
+    private volatile boolean running = true;
     
-    private DatabaseManager() {
-        loadData();
+    public ReplicaDatabase(String host, int port) {
+        this.host = host;
+        this.port = port;
     }
     
-    public static synchronized DatabaseManager getInstance() {
-        if (instance == null) {
-            instance = new DatabaseManager();
-        }
-        return instance;
+    public void start() {
+        Thread follower = new Thread(this::followLoop, "habithero-replica");
+        follower.setDaemon(true);
+        follower.start();
     }
     
-    // Load all data
-    private void loadData() {
-        users = FileStorage.loadUsers();
-        habits = FileStorage.loadHabits();
-        
-        // Find max IDs
-        for (User user : users.values()) {
-            if (user.getId() >= nextUserId) nextUserId = user.getId() + 1;
-        }
-        for (Habit habit : habits.values()) {
-            if (habit.getHabitId() >= nextHabitId) nextHabitId = habit.getHabitId() + 1;
-        }
+    public void stop() {
+        running = false;
     }
     
-    // Save all data
-    private void saveData() {
-        FileStorage.saveUsers(users);
-        FileStorage.saveHabits(habits);
+    // Reconnect forever, resuming after the last applied mutation; the
+    // primary answers with a snapshot when that offset is no longer valid
+    private void followLoop() {
+        while (running) {
+            try (Socket socket = new Socket(host, port);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+                synchronized (this) {
+                    out.writeLong(epoch);
+                    out.writeLong(appliedSeq);
+                }
+                out.flush();
+                while (running) {
+                    byte frame = in.readByte();
+                    if (frame == ReplicationServer.SNAPSHOT) {
+                        long snapshotEpoch = in.readLong();
+                        long seq = in.readLong();
+                        applySnapshot(snapshotEpoch, seq, readMutations(in, in.readInt()));
+                    } else {
+                        int count = in.readInt();
+                        long head = in.readLong();
+                        applyBatch(readMutations(in, count), head);
+                    }
+                }
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(RETRY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
     }
     
-    // Register user
-    public boolean registerUser(String username, String password) {
-        if (users.containsKey(username)) {
-            return false;
+    private static java.util.List<Mutation> readMutations(DataInputStream in, int count) throws IOException {
+        java.util.List<Mutation> mutations = new ArrayList<Mutation>(count);
+        for (int i = 0; i < count; i++) {
+            mutations.add(Mutation.read(in));
         }
-        
-        User user = new User(nextUserId++, username, PasswordUtil.hash(password));
-        users.put(username, user);
-        saveData();
-        return true;
+        return mutations;
     }
     
-    // Login user
-    public User loginUser(String username, String password) {
-        User user = users.get(username);
-        if (user != null && user.getHashedPassword().equals(PasswordUtil.hash(password))) {
-            return user;
+    // Replace all state with the primary's snapshot
+    private synchronized void applySnapshot(long snapshotEpoch, long seq, java.util.List<Mutation> mutations) {
+        users.clear();
+        habits.clear();
+        habitsByUser.clear();
+        for (Mutation m : mutations) {
+            apply(m);
         }
-        return null;
+        epoch = snapshotEpoch;
+        appliedSeq = seq;
+        appliedTimestamp = System.currentTimeMillis();
+        primaryHead = seq;
     }
     
-    // Add habit
-    public Habit addHabit(int userId, String name, String description) {
-        Habit habit = new Habit(nextHabitId++, userId, name, description);
-        habits.put(habit.getHabitId(), habit);
-        saveData();
-        return habit;
+    private synchronized void applyBatch(java.util.List<Mutation> batch, long head) {
+        for (Mutation m : batch) {
+            if (m.seq <= appliedSeq) continue;
+            apply(m);
+            appliedSeq = m.seq;
+            appliedTimestamp = m.timestamp;
+        }
+        primaryHead = head;
     }
     
-    // Get user habits
-    public java.util.List<Habit> getUserHabits(int userId) {
-        java.util.List<Habit> userHabits = new ArrayList<Habit>();
-        for (Habit habit : habits.values()) {
-            if (habit.getUserId() == userId) {
-                userHabits.add(habit);
-            }
+    private void apply(Mutation m) {
+        switch (m.type) {
+            case REGISTER:
+                users.put(m.id, new User(m.id, m.name, m.text));
+                break;
+            case ADD:
+                Habit added = new Habit(m.id, m.userId, m.name, m.text,
+                    m.createdDate, m.streak, m.lastCompleted);
+                habits.put(m.id, added);
+                java.util.List<Habit> list = habitsByUser.get(m.userId);
+                if (list == null) {
+                    list = new ArrayList<Habit>();
+                    habitsByUser.put(m.userId, list);
+                }
+                list.add(added);
+                break;
+            case COMPLETE:
+                Habit habit = habits.get(m.id);
+                if (habit != null) {
+                    habit.setStreak(m.streak);
+                    habit.setLastCompleted(m.lastCompleted);
+                }
+                break;
+            case DELETE:
+                Habit removed = habits.remove(m.id);
+                if (removed != null) {
+                    habitsByUser.get(removed.getUserId()).remove(removed);
+                }
+                break;
         }
-        return userHabits;
     }
     
-    // Complete habit
-    public boolean completeHabit(int habitId) {
-        Habit habit = habits.get(habitId);
-        if (habit == null) return false;
+    // Copies, with streaks broken by a missed day already reset, so reads do
+    // not depend on the primary having run its daily rollover yet
+    public synchronized java.util.List<Habit> getUserHabits(int userId) {
+        java.util.List<Habit> userHabits = new ArrayList<Habit>();
+        java.util.List<Habit> list = habitsByUser.get(userId);
+        if (list == null) return userHabits;
         
         LocalDate today = LocalDate.now();
-        LocalDate last = habit.getLastCompleted();
-        
-        if (last != null && last.equals(today)) {
-            return false; // Already completed today
+        for (Habit habit : list) {
+            Habit copy = habit.copy();
+            if (DatabaseManager.isStreakBroken(copy, today)) copy.setStreak(0);
+            userHabits.add(copy);
         }
-        
-        // Update streak
-        if (last != null && last.plusDays(1).equals(today)) {
-            habit.setStreak(habit.getStreak() + 1);
-        } else {
-            habit.setStreak(1);
-        }
-        
-        habit.setLastCompleted(today);
-        saveData();
-        return true;
+        return userHabits;
     }
     
-    // Delete habit
-    public boolean deleteHabit(int habitId) {
-        if (habits.containsKey(habitId)) {
-            habits.remove(habitId);
-            saveData();
-            return true;
-        }
-        return false;
+    public synchronized Map<String, Integer> getUserStats(int userId) {
+        return DatabaseManager.computeStats(getUserHabits(userId), LocalDate.now());
     }
     
-    // Get user stats
-    public Map<String, Integer> getUserStats(int userId) {
-        java.util.List<Habit> userHabits = getUserHabits(userId);
-        LocalDate today = LocalDate.now();
-        
-        int totalStreak = 0;
-        int completedToday = 0;
-        int totalHabits = userHabits.size();
-        
-        for (Habit habit : userHabits) {
-            totalStreak += habit.getStreak();
-            if (habit.getLastCompleted() != null && habit.getLastCompleted().equals(today)) {
-                completedToday++;
-            }
+    public synchronized long getAppliedSeq() {
+        return appliedSeq;
+    }
+    
+    // Replication lag in mutations behind the last head the primary reported
+    public synchronized long getLagMutations() {
+        return primaryHead - appliedSeq;
+    }
+    
+    // Age of the newest applied mutation while behind, 0 when caught up
+    public synchronized long getLagMillis() {
+        if (primaryHead <= appliedSeq) return 0;
+        return System.currentTimeMillis() - appliedTimestamp;
+    }
+    
+    // java ReplicaDatabase <host> <port>: follow a primary and print lag
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        
+        ReplicaDatabase replica = new ReplicaDatabase(host, port);
+        replica.start();
+        while (true) {
+            Thread.sleep(5000);
+            System.out.printf("applied=%d lag=%d mutations (%d ms) users=%d habits=%d%n",
+                replica.getAppliedSeq(), replica.getLagMutations(), replica.getLagMillis(),
+                replica.userCount(), replica.habitCount());
         }
-        
-        Map<String, Integer> stats = new HashMap<String, Integer>();
-        stats.put("totalHabits", totalHabits);
-        stats.put("totalStreak", totalStreak);
-        stats.put("completedToday", completedToday);
-        stats.put("successRate", totalHabits > 0 ? (completedToday * 100) / totalHabits : 0);
-        
-        return stats;
     }
+    
+    public synchronized int userCount() { return users.size(); }
+    public synchronized int habitCount() { return habits.size(); }
 }
 
 // SPLASH SCREEN
@@ -531,6 +2093,7 @@ class DashboardUI extends JFrame {
     private DatabaseManager db;
     private JPanel habitsPanel;
     private JLabel statsLabel;
+    private JLabel adherenceLabel;
     
     // Motivational quotes
     private String[] quotes = {
@@ -583,7 +2146,11 @@ class DashboardUI extends JFrame {
         // Stats
         statsLabel = new JLabel();
         statsLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        statsLabel.setBorder(BorderFactory.createEmptyBorder(0, 20, 20, 20));
+        statsLabel.setBorder(BorderFactory.createEmptyBorder(0, 20, 5, 20));
+        
+        adherenceLabel = new JLabel();
+        adherenceLabel.setFont(new Font("Arial", Font.PLAIN, 13));
+        adherenceLabel.setBorder(BorderFactory.createEmptyBorder(0, 20, 20, 20));
         updateStats();
         
         // Add Habit Form
@@ -615,6 +2182,7 @@ class DashboardUI extends JFrame {
         // Add components
         content.add(quoteLabel);
         content.add(statsLabel);
+        content.add(adherenceLabel);
         content.add(addHabitPanel);
         content.add(new JSeparator());
         content.add(scrollPane);
@@ -759,14 +2327,541 @@ class DashboardUI extends JFrame {
         Map<String, Integer> stats = db.getUserStats(currentUser.getId());
         
         String statsText = String.format(
-            "<html><b>Stats:</b> Habits: %d | Total Streak: %d | Completed Today: %d | Success Rate: %d%%</html>",
+            "<html><b>Stats:</b> Habits: %d | Total Streak: %d | Completed Today: %d | Success Rate: %d%% | Rank: #%,d of %,d</html>",
             stats.get("totalHabits"),
             stats.get("totalStreak"),
             stats.get("completedToday"),
-            stats.get("successRate")
+            stats.get("successRate"),
+            db.getUserRank(currentUser.getId()),
+            db.getRankedUserCount()
         );
         
         statsLabel.setText(statsText);
+        
+        AdherenceReport adherence = db.getUserAdherence(currentUser.getId());
+        adherenceLabel.setText(String.format(
+            "<html><b>Adherence:</b> 7-day: %.0f%% | 30-day: %.0f%% | Trend: %+.1f%%/week | 7-Day Streak Odds: %.0f%%</html>",
+            adherence.getRate7() * 100,
+            adherence.getRate30() * 100,
+            adherence.getTrendPerWeek() * 100,
+            adherence.getStreakSurvival() * 100
+        ));
+    }
+}
+
+// REPORT EXPORTER (Streams per-user reports into a zip or tar.gz archive)
+//
+// java -cp .:commons-compress-1.21.jar ReportExporter <out.zip|out.tar.gz> [csv|json]
+class ReportExporter {
+    private final DatabaseManager db;
+    private final boolean json;
+    private final int threads;
+    
+    public ReportExporter(DatabaseManager db, boolean json, int threads) {
+        this.db = db;
+        this.json = json;
+        this.threads = threads;
+    }
+    
+    // Reports are rendered in parallel but written in user id order; at most
+    // a small window of rendered reports is held in memory at any time
+    public int export(File target) throws IOException, InterruptedException {
+        String name = target.getName().toLowerCase();
+        boolean zip = name.endsWith(".zip");
+        if (!zip && !name.endsWith(".tar.gz") && !name.endsWith(".tgz")) {
+            throw new IllegalArgumentException("Archive must end with .zip, .tar.gz or .tgz: " + target);
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int window = threads * 4;
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<Future<byte[]>>();
+        Deque<String> names = new ArrayDeque<String>();
+        Date time = new Date();
+        int exported = 0;
+        
+        try (ArchiveOutputStream out = openArchive(target, zip)) {
+            for (User user : db.getAllUsers()) {
+                // Copy on this thread so render workers never see live habits,
+                // and derive the stats from that same copy
+                java.util.List<Habit> habits = new ArrayList<Habit>();
+                for (Habit habit : db.getUserHabits(user.getId())) {
+                    habits.add(habit.copy());
+                }
+                Map<String, Integer> stats = DatabaseManager.computeStats(habits, db.today());
+                inFlight.add(pool.submit(() -> render(user, habits, stats)));
+                names.add(entryName(user));
+                
+                if (inFlight.size() >= window) {
+                    writeEntry(out, zip, names.poll(), time, await(inFlight.poll()));
+                    exported++;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeEntry(out, zip, names.poll(), time, await(inFlight.poll()));
+                exported++;
+            }
+            out.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+        return exported;
+    }
+    
+    private static ArchiveOutputStream openArchive(File target, boolean zip) throws IOException {
+        OutputStream file = new BufferedOutputStream(new FileOutputStream(target));
+        if (zip) {
+            return new ZipArchiveOutputStream(file);
+        }
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(file));
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        return tar;
+    }
+    
+    private static void writeEntry(ArchiveOutputStream out, boolean zip, String name, Date time, byte[] data)
+            throws IOException {
+        if (zip) {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setSize(data.length);
+            entry.setTime(time.getTime());
+            out.putArchiveEntry(entry);
+        } else {
+            TarArchiveEntry entry = new TarArchiveEntry(name);
+            entry.setSize(data.length);
+            entry.setModTime(time);
+            out.putArchiveEntry(entry);
+        }
+        out.write(data);
+        out.closeArchiveEntry();
+    }
+    
+    private static byte[] await(Future<byte[]> report) throws IOException, InterruptedException {
+        try {
+            return report.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render report", e.getCause());
+        }
+    }
+    
+    private String entryName(User user) {
+        String safe = user.getUsername().replaceAll("[^A-Za-z0-9._-]", "_");
+        return String.format("users/%08d-%s.%s", user.getId(), safe, json ? "json" : "csv");
+    }
+    
+    private byte[] render(User user, java.util.List<Habit> habits, Map<String, Integer> stats)
+            throws UnsupportedEncodingException {
+        return (json ? renderJson(user, habits, stats) : renderCsv(user, habits, stats)).getBytes("UTF-8");
+    }
+    
+    private static String renderCsv(User user, java.util.List<Habit> habits, Map<String, Integer> stats) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("user_id,username,total_habits,total_streak,completed_today,success_rate\n");
+        sb.append(user.getId()).append(',').append(csv(user.getUsername())).append(',')
+          .append(stats.get("totalHabits")).append(',').append(stats.get("totalStreak")).append(',')
+          .append(stats.get("completedToday")).append(',').append(stats.get("successRate")).append("\n\n");
+        
+        sb.append("habit_id,name,description,created,streak,last_completed\n");
+        for (Habit habit : habits) {
+            sb.append(habit.getHabitId()).append(',')
+              .append(csv(habit.getName())).append(',')
+              .append(csv(habit.getDescription())).append(',')
+              .append(habit.getCreatedDate() == null ? "" : habit.getCreatedDate()).append(',')
+              .append(habit.getStreak()).append(',')
+              .append(habit.getLastCompleted() == null ? "" : habit.getLastCompleted()).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    private static String renderJson(User user, java.util.List<Habit> habits, Map<String, Integer> stats) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"userId\":").append(user.getId())
+          .append(",\"username\":").append(json(user.getUsername()))
+          .append(",\"stats\":{\"totalHabits\":").append(stats.get("totalHabits"))
+          .append(",\"totalStreak\":").append(stats.get("totalStreak"))
+          .append(",\"completedToday\":").append(stats.get("completedToday"))
+          .append(",\"successRate\":").append(stats.get("successRate"))
+          .append("},\"habits\":[");
+        for (int i = 0; i < habits.size(); i++) {
+            Habit habit = habits.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"habitId\":").append(habit.getHabitId())
+              .append(",\"name\":").append(json(habit.getName()))
+              .append(",\"description\":").append(json(habit.getDescription()))
+              .append(",\"created\":").append(json(habit.getCreatedDate() == null ? null : habit.getCreatedDate().toString()))
+              .append(",\"streak\":").append(habit.getStreak())
+              .append(",\"lastCompleted\":").append(json(habit.getLastCompleted() == null ? null : habit.getLastCompleted().toString()))
+              .append('}');
+        }
+        return sb.append("]}\n").toString();
+    }
+    
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+    
+    private static String json(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReportExporter <out.zip|out.tar.gz> [csv|json]");
+            System.exit(1);
+        }
+        boolean json = args.length > 1 && args[1].equalsIgnoreCase("json");
+        int threads = Runtime.getRuntime().availableProcessors();
+        
+        ReportExporter exporter = new ReportExporter(DatabaseManager.getInstance(), json, threads);
+        int count = exporter.export(new File(args[0]));
+        System.out.println("Exported " + count + " user reports to " + args[0]);
+    }
+}
+
+// LOAD SIMULATOR (Reproducible synthetic workload against DatabaseManager)
+//
+// java -cp .:commons-math3-3.6.1.jar LoadSimulator --users=500 --days=7 --threads=4 --seed=42
+//     [--maxHabits=10 --habitSkew=1.2 --adherenceAlpha=4 --adherenceBeta=2]
+//     [--dir=<empty data dir>] [--storage=file|<jdbc url>]
+//     [--replicationPort=<port> --linger=<seconds>]
+//
+// Habit counts per user follow a Zipf distribution and each user's daily
+// adherence is drawn from a Beta distribution. Every completion decision is
+// derived from (seed, user, day), so runs repeat exactly whatever the thread
+// scheduling.
+class LoadSimulator {
+    // Fixed clock the simulator moves forward one day at a time
+    private static class SimulationClock extends Clock {
+        private final ZoneId zone;
+        private volatile Instant instant;
+        
+        SimulationClock(ZoneId zone, Instant instant) {
+            this.zone = zone;
+            this.instant = instant;
+        }
+        
+        void setDate(LocalDate date) {
+            instant = date.atTime(12, 0).atZone(zone).toInstant();
+        }
+        
+        public ZoneId getZone() { return zone; }
+        public Clock withZone(ZoneId zone) { return new SimulationClock(zone, instant); }
+        public Instant instant() { return instant; }
+    }
+    
+    private final Map<String, String> options;
+    private final long seed;
+    
+    public LoadSimulator(Map<String, String> options) {
+        this.options = options;
+        this.seed = Long.parseLong(option("seed", "42"));
+    }
+    
+    private String option(String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+    
+    public void run() throws IOException, InterruptedException {
+        int userCount = Integer.parseInt(option("users", "500"));
+        int days = Integer.parseInt(option("days", "7"));
+        int threads = Integer.parseInt(option("threads", "4"));
+        int maxHabits = Integer.parseInt(option("maxHabits", "10"));
+        double habitSkew = Double.parseDouble(option("habitSkew", "1.2"));
+        double alpha = Double.parseDouble(option("adherenceAlpha", "4"));
+        double beta = Double.parseDouble(option("adherenceBeta", "2"));
+        
+        // Always start from empty storage, otherwise a rerun adds to the
+        // previous run's users and habits and is no longer reproducible
+        String storageOption = option("storage", "file");
+        File dir = null;
+        File database = null;
+        StorageEngine storage;
+        if (storageOption.startsWith("jdbc:")) {
+            database = databaseFile(storageOption);
+            if (storageSize(null, database) > 0) {
+                throw new IllegalArgumentException("Database already exists, remove it first: " + database);
+            }
+            storage = new JdbcStorage(storageOption, threads);
+        } else {
+            dir = options.containsKey("dir")
+                ? new File(options.get("dir"))
+                : java.nio.file.Files.createTempDirectory("habithero-sim").toFile();
+            String[] existing = dir.list();
+            if (existing != null && existing.length > 0) {
+                throw new IllegalArgumentException("--dir must be empty or missing: " + dir);
+            }
+            storage = new FileStorage(dir);
+        }
+        
+        LocalDate start = LocalDate.now().minusDays(days);
+        SimulationClock clock = new SimulationClock(ZoneId.systemDefault(), Instant.now());
+        clock.setDate(start);
+        DatabaseManager db = new DatabaseManager(storage);
+        db.setClock(clock);
+        
+        // --replicationPort=N makes this run a headless primary for followers
+        Integer replicationPort = options.containsKey("replicationPort")
+            ? Integer.valueOf(options.get("replicationPort")) : null;
+        if (replicationPort != null) {
+            db.startReplication(replicationPort);
+        }
+        
+        // Setup runs single-threaded so user and habit ids are reproducible
+        RandomGenerator rng = new Well19937c(seed);
+        ZipfDistribution habitCounts = new ZipfDistribution(rng, maxHabits, habitSkew);
+        BetaDistribution adherence = new BetaDistribution(rng, alpha, beta);
+        
+        int[][] userHabits = new int[userCount][];
+        double[] userAdherence = new double[userCount];
+        int sampleUserId = 0;
+        long setupStart = System.nanoTime();
+        for (int u = 0; u < userCount; u++) {
+            String username = "sim-" + seed + "-" + u;
+            db.registerUser(username, "simulated");
+            int userId = db.loginUser(username, "simulated").getId();
+            if (u == 0) sampleUserId = userId;
+            
+            userHabits[u] = new int[habitCounts.sample()];
+            for (int h = 0; h < userHabits[u].length; h++) {
+                userHabits[u][h] = db.addHabit(userId, "Habit " + h, "simulated").getHabitId();
+            }
+            userAdherence[u] = adherence.sample();
+        }
+        storage.flush();
+        System.out.printf("setup: %d users, %d habits in %d ms, %,d bytes on disk (%s)%n",
+            userCount, totalHabits(userHabits), (System.nanoTime() - setupStart) / 1_000_000,
+            storageSize(dir, database), database != null ? database : dir);
+        
+        System.out.println("day,date,first_read_ms,completions,ops_per_sec,p50_ms,p95_ms,p99_ms,max_ms,bytes_on_disk");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int day = 0; day < days; day++) {
+                LocalDate date = start.plusDays(day + 1);
+                clock.setDate(date);
+                
+                // The first read of a day pays for the streak rollover, as in production
+                long readStart = System.nanoTime();
+                db.getUserStats(sampleUserId);
+                double firstReadMs = (System.nanoTime() - readStart) / 1e6;
+                
+                String metrics = simulateDay(db, pool, threads, day, date, userHabits, userAdherence);
+                storage.flush();
+                System.out.printf(Locale.ROOT, "%d,%s,%.3f,%s,%d%n", day + 1, date, firstReadMs, metrics,
+                    storageSize(dir, database));
+            }
+            
+            // Keep serving so followers can drain the log and report their lag
+            if (replicationPort != null) {
+                int linger = Integer.parseInt(option("linger", "10"));
+                System.out.println("replication head " + db.getChangeLog().head() + ", serving for " + linger + " s");
+                Thread.sleep(linger * 1000L);
+            }
+        } finally {
+            pool.shutdownNow();
+            storage.close();
+        }
+    }
+    
+    // One day of completeHabit traffic; returns the CSV metrics for that day
+    private String simulateDay(DatabaseManager db, ExecutorService pool, int threads, int day, LocalDate date,
+                             int[][] userHabits, double[] userAdherence) throws InterruptedException {
+        java.util.List<Callable<long[]>> workers = new ArrayList<Callable<long[]>>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers.add(() -> {
+                long[] latencies = new long[16];
+                int count = 0;
+                for (int u = worker; u < userHabits.length; u += threads) {
+                    Random random = new Random(mix(seed, u, day));
+                    for (int habitId : userHabits[u]) {
+                        if (random.nextDouble() >= userAdherence[u]) continue;
+                        long begin = System.nanoTime();
+                        db.completeHabit(habitId);
+                        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                        latencies[count++] = System.nanoTime() - begin;
+                    }
+                }
+                return Arrays.copyOf(latencies, count);
+            });
+        }
+        
+        long begin = System.nanoTime();
+        java.util.List<long[]> results = new ArrayList<long[]>();
+        for (Future<long[]> f : pool.invokeAll(workers)) {
+            try {
+                results.add(f.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Simulation worker failed", e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        
+        int total = 0;
+        for (long[] r : results) total += r.length;
+        long[] all = new long[total];
+        int pos = 0;
+        for (long[] r : results) {
+            System.arraycopy(r, 0, all, pos, r.length);
+            pos += r.length;
+        }
+        Arrays.sort(all);
+        
+        return String.format(Locale.ROOT, "%d,%.0f,%.3f,%.3f,%.3f,%.3f",
+            total, total / (elapsed / 1e9),
+            percentile(all, 50), percentile(all, 95), percentile(all, 99),
+            total == 0 ? 0 : all[total - 1] / 1e6);
+    }
+    
+    // Nearest-rank percentile of sorted nanosecond samples, in milliseconds
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+    
+    private static long mix(long seed, int user, int day) {
+        long h = seed * 0x9E3779B97F4A7C15L + user;
+        h = h * 0xBF58476D1CE4E5B9L + day;
+        return h ^ (h >>> 31);
+    }
+    
+    private static int totalHabits(int[][] userHabits) {
+        int total = 0;
+        for (int[] habits : userHabits) total += habits.length;
+        return total;
+    }
+    
+    // On-disk database named by an embedded SQLite or H2 URL. Server and
+    // in-memory URLs have no local file to measure, so they are rejected.
+    static File databaseFile(String url) {
+        String path;
+        if (url.startsWith("jdbc:sqlite:")) {
+            path = url.substring("jdbc:sqlite:".length());
+            if (path.indexOf('?') >= 0) path = path.substring(0, path.indexOf('?'));
+        } else if (url.startsWith("jdbc:h2:")) {
+            path = url.substring("jdbc:h2:".length());
+            if (path.indexOf(';') >= 0) path = path.substring(0, path.indexOf(';'));
+            if (path.startsWith("file:")) path = path.substring("file:".length());
+        } else {
+            throw new IllegalArgumentException("Only embedded jdbc:sqlite: and jdbc:h2: URLs are supported: " + url);
+        }
+        
+        if (path.isEmpty() || path.startsWith(":memory:") || path.startsWith("mem:")
+                || path.startsWith("tcp:") || path.startsWith("ssl:")) {
+            throw new IllegalArgumentException("Storage URL has no database file to measure: " + url);
+        }
+        if (path.startsWith("~")) {
+            path = System.getProperty("user.home") + path.substring(1);
+        }
+        return new File(path).getAbsoluteFile();
+    }
+    
+    // Bytes used by the engine: the data directory for file storage, or every
+    // file sharing the database's name (H2 .mv.db/.trace.db, SQLite -wal/-journal)
+    private static long storageSize(File dir, File database) {
+        if (database == null) return directorySize(dir);
+        File[] files = database.getParentFile().listFiles();
+        if (files == null) return 0;
+        long size = 0;
+        for (File file : files) {
+            if (file.isFile() && file.getName().startsWith(database.getName())) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+    
+    private static long directorySize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files == null) return 0;
+        for (File file : files) {
+            size += file.isDirectory() ? directorySize(file) : file.length();
+        }
+        return size;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Options are --key=value, got: " + arg);
+                System.exit(1);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new LoadSimulator(options).run();
+    }
+}
+
+// STORAGE BENCHMARK (java StorageBenchmark <users> [jdbc-url])
+class StorageBenchmark {
+    public static void main(String[] args) throws IOException {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        
+        File dir = java.nio.file.Files.createTempDirectory("habithero-bench").toFile();
+        run("file", new FileStorage(dir), userCount);
+        if (args.length > 1) {
+            run(args[1], new JdbcStorage(args[1], 4), userCount);
+        }
+    }
+    
+    private static void run(String label, StorageEngine storage, int userCount) {
+        DatabaseManager db = new DatabaseManager(storage);
+        String prefix = "bench-" + System.nanoTime() + "-";
+        java.util.List<Integer> userIds = new ArrayList<Integer>();
+        java.util.List<Integer> habitIds = new ArrayList<Integer>();
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < userCount; i++) {
+            db.registerUser(prefix + i, "password");
+            userIds.add(db.loginUser(prefix + i, "password").getId());
+        }
+        long registered = System.nanoTime();
+        
+        for (int userId : userIds) {
+            for (int h = 0; h < 3; h++) {
+                habitIds.add(db.addHabit(userId, "Habit " + h, "benchmark").getHabitId());
+            }
+        }
+        long added = System.nanoTime();
+        
+        for (int habitId : habitIds) {
+            db.completeHabit(habitId);
+        }
+        storage.flush();
+        long completed = System.nanoTime();
+        
+        for (int userId : userIds) {
+            storage.loadUserHabits(userId);
+        }
+        long queried = System.nanoTime();
+        storage.close();
+        
+        System.out.printf("%s: register %d ms, add %d ms, complete %d ms, query by user %d ms%n",
+            label,
+            (registered - start) / 1_000_000,
+            (added - registered) / 1_000_000,
+            (completed - added) / 1_000_000,
+            (queried - completed) / 1_000_000);
     }
 }
 